@@ -84,16 +84,46 @@ public class CorpusController {
     }
 
     /**
-     * Reload corpus from directory
+     * Remove a document added through /add or /upload
+     */
+    @DeleteMapping("/delete")
+    public ResponseEntity<String> removeDocument(@RequestParam String docId) {
+        try {
+            if (!corpusService.removeDocument(docId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("Document not found: " + docId);
+            }
+            return ResponseEntity.ok("Document removed successfully: " + docId);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error removing document: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reload corpus from directory in the background
      */
     @PostMapping("/reload")
     public ResponseEntity<String> reloadCorpus() {
         try {
-            corpusService.loadCorpusFromDirectory();
-            return ResponseEntity.ok("Corpus reloaded successfully");
+            if (!corpusService.reloadCorpusAsync()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Corpus reload already in progress");
+            }
+            return ResponseEntity.accepted()
+                    .body("Corpus reload started, see /corpus/reload/status");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error reloading corpus: " + e.getMessage());
         }
     }
+
+    /**
+     * Get progress of the last corpus reload
+     */
+    @GetMapping("/reload/status")
+    public ResponseEntity<Map<String, Object>> getReloadStatus() {
+        return ResponseEntity.ok(corpusService.getReloadStatus());
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.bakir.textmining.Service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,30 +11,75 @@ import safar.basic.morphology.stemmer.interfaces.IStemmer;
 import safar.basic.morphology.stemmer.model.WordStemmerAnalysis;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CorpusService {
 
     private static final Logger logger = LoggerFactory.getLogger(CorpusService.class);
-
-    private final List<Document> corpus = new ArrayList<>();
-    private final Map<String, Integer> documentFrequency = new HashMap<>();
-    private int totalDocuments = 0;
+    private static final String STEMMER_ID = "ISRI_STEMMER";
+
+    // Serialises mutations, log appends and index swaps; queries never take it
+    private final ReentrantLock mutationLock = new ReentrantLock();
+    // What queries read; replaced as a whole by every mutation and reload
+    private volatile Index index = Index.EMPTY;
+    // Directory documents of the live index by content hash, never mutated once swapped in
+    private volatile Map<String, Document> directoryDocuments = Collections.emptyMap();
+    // Documents added through the API, keyed by id, and their document frequencies;
+    // guarded by the mutation lock. These are the ones the write-ahead log persists
+    private final Map<String, Document> ingestedDocuments = new LinkedHashMap<>();
+    private final Map<String, Integer> ingestedFrequency = new HashMap<>();
+    // Undo actions of mutations applied but not yet durable, by log sequence
+    private final ConcurrentNavigableMap<Long, Runnable> pendingUndo = new ConcurrentSkipListMap<>();
     private final ITokenizer tokenizer;
     private final IStemmer stemmer;
     private final StopWordsService stopWordsService;
-
-    public CorpusService(StopWordsService stopWordsService) throws Exception {
+    private final String corpusPath;
+    private final CorpusWriteAheadLog writeAheadLog;
+    private final long compactionIntervalMs;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    private ScheduledExecutorService maintenanceExecutor;
+    private final ExecutorService reloadExecutor;
+    private volatile ReloadProgress reloadProgress = new ReloadProgress();
+    // Identifies the stop words and stemmer behind persisted directory stems
+    private String stemFingerprint;
+
+    public CorpusService(StopWordsService stopWordsService,
+                         @Value("${corpus.path:corpus/arabic}") String corpusPath,
+                         CorpusWriteAheadLog writeAheadLog,
+                         @Value("${corpus.wal.compaction-interval-ms:300000}") long compactionIntervalMs) throws Exception {
         this.tokenizer = new SAFARTokenizer();
-        this.stemmer = StemmerFactory.getImplementation("ISRI_STEMMER");
+        this.stemmer = StemmerFactory.getImplementation(STEMMER_ID);
         this.stopWordsService = stopWordsService;
+        this.corpusPath = corpusPath;
+        this.writeAheadLog = writeAheadLog;
+        this.compactionIntervalMs = compactionIntervalMs;
+        this.reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "corpus-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -44,6 +90,7 @@ public class CorpusService {
         private String content;
         private List<String> stemrs;
         private Map<String, Integer> termFrequency;
+        private String contentHash;
 
         public Document(String id, String content) {
             this.id = id;
@@ -58,69 +105,538 @@ public class CorpusService {
         public Map<String, Integer> getTermFrequency() { return termFrequency; }
         public void setStems(List<String> stemrs) { this.stemrs = stemrs; }
         public void setTermFrequency(Map<String, Integer> tf) { this.termFrequency = tf; }
+        public String getContentHash() { return contentHash; }
+        public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    }
+
+    /**
+     * Progress of a directory index build
+     */
+    private static class ReloadProgress {
+        private volatile String state = "IDLE";
+        private final AtomicInteger filesTotal = new AtomicInteger();
+        private final AtomicInteger filesProcessed = new AtomicInteger();
+        private final AtomicInteger documentsReused = new AtomicInteger();
+        private final AtomicInteger documentsStemmed = new AtomicInteger();
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private void start() {
+            startedAt = Instant.now();
+            state = "RUNNING";
+        }
+
+        private void finish(String finalState, String message) {
+            error = message;
+            finishedAt = Instant.now();
+            state = finalState;
+        }
+    }
+
+    /**
+     * Directory documents built off the live index, ready to be swapped in
+     */
+    private static class DirectoryIndex {
+        private final List<Document> documents = new ArrayList<>();
+        private final Map<String, Document> byHash = new HashMap<>();
+        private final Map<String, Integer> documentFrequency = new HashMap<>();
+        private boolean stemsChanged;
+    }
+
+    /**
+     * Immutable view of the corpus: the directory documents of the last
+     * reload plus the documents ingested through the API. A query reads one
+     * instance throughout, so it never mixes an old and a new corpus.
+     */
+    static final class Index {
+        private static final Index EMPTY = new Index(new DirectoryIndex(), List.of(), Map.of());
+
+        private final DirectoryIndex directory;
+        private final List<Document> ingested;
+        private final Map<String, Integer> ingestedFrequency;
+
+        private Index(DirectoryIndex directory, List<Document> ingested, Map<String, Integer> ingestedFrequency) {
+            this.directory = directory;
+            this.ingested = ingested;
+            this.ingestedFrequency = ingestedFrequency;
+        }
+
+        int getTotalDocuments() {
+            return directory.documents.size() + ingested.size();
+        }
+
+        private int documentFrequency(String term) {
+            return directory.documentFrequency.getOrDefault(term, 0) + ingestedFrequency.getOrDefault(term, 0);
+        }
+
+        private int uniqueTerms() {
+            int unique = directory.documentFrequency.size();
+            for (String term : ingestedFrequency.keySet()) {
+                if (!directory.documentFrequency.containsKey(term)) {
+                    unique++;
+                }
+            }
+            return unique;
+        }
+
+        private Stream<Document> documents() {
+            return Stream.concat(directory.documents.stream(), ingested.stream());
+        }
     }
 
     /**
-     * Load Arabic corpus from directory
+     * Load the corpus directory, reusing persisted stems for unchanged files,
+     * then replay documents ingested through the API
      */
     @PostConstruct
-    public void loadCorpusFromDirectory() {
-        String corpusPath = "corpus/arabic";
+    public void initialize() {
+        stemFingerprint = stemFingerprint();
+        loadStemCache();
+        loadCorpusFromDirectory();
+        recoverIngestedDocuments();
+
+        if (writeAheadLog.isEnabled()) {
+            maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "corpus-wal-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenanceExecutor.scheduleWithFixedDelay(this::compactWriteAheadLog,
+                    compactionIntervalMs, compactionIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+        }
+        reloadExecutor.shutdownNow();
+    }
+
+    /**
+     * Load Arabic corpus from directory, blocking until the new index is live.
+     * Only used at startup; later reloads go through {@link #reloadCorpusAsync()}.
+     */
+    private void loadCorpusFromDirectory() {
+        ReloadProgress progress = new ReloadProgress();
+        progress.start();
+        reloadProgress = progress;
+        runReload(progress);
+    }
+
+    /**
+     * Rebuild the directory index in the background; queries keep using
+     * the current index until the new one is swapped in.
+     *
+     * @return false if a reload is already running
+     */
+    public synchronized boolean reloadCorpusAsync() {
+        if ("RUNNING".equals(reloadProgress.state)) {
+            return false;
+        }
+        ReloadProgress progress = new ReloadProgress();
+        progress.start();
+        reloadProgress = progress;
+        reloadExecutor.execute(() -> runReload(progress));
+        return true;
+    }
+
+    private void runReload(ReloadProgress progress) {
         try {
-            Path dirPath = Paths.get(corpusPath);
-            if (Files.exists(dirPath) && Files.isDirectory(dirPath)) {
-                Files.list(dirPath)
-                        .filter(path -> path.toString().endsWith(".txt"))
-                        .forEach(this::loadDocument);
-
-                calculateDocumentFrequencies();
-                logger.info("Loaded {} documents from corpus", totalDocuments);
-            } else {
-                logger.warn("Corpus directory not found: {}", corpusPath);
+            DirectoryIndex built = buildDirectoryIndex(progress);
+            if (built == null) {
+                progress.finish("FAILED", "Corpus directory not found: " + corpusPath);
+                return;
             }
-        } catch (IOException e) {
+            swapDirectoryIndex(built);
+            if (built.stemsChanged) {
+                saveStemCache(built);
+            }
+            progress.finish("COMPLETED", null);
+            logger.info("Loaded {} documents from corpus ({} reused, {} stemmed)",
+                    built.documents.size(), progress.documentsReused.get(), progress.documentsStemmed.get());
+        } catch (Exception e) {
+            progress.finish("FAILED", e.getMessage());
             logger.error("Error loading corpus: {}", e.getMessage());
         }
     }
 
+    /**
+     * Read every corpus file, reusing the stems of documents whose content
+     * hash is already in the live index
+     */
+    private DirectoryIndex buildDirectoryIndex(ReloadProgress progress) throws IOException {
+        Path dirPath = Paths.get(corpusPath);
+        if (!Files.exists(dirPath) || !Files.isDirectory(dirPath)) {
+            logger.warn("Corpus directory not found: {}", corpusPath);
+            return null;
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dirPath)) {
+            files = listing
+                    .filter(path -> path.toString().endsWith(".txt"))
+                    .sorted()
+                    .toList();
+        }
+        progress.filesTotal.set(files.size());
+
+        Map<String, Document> previous = directoryDocuments;
+        DirectoryIndex built = new DirectoryIndex();
+        for (Path filePath : files) {
+            Document doc = loadDocument(filePath, previous, progress);
+            if (doc != null) {
+                built.documents.add(doc);
+                built.byHash.putIfAbsent(doc.getContentHash(), doc);
+                for (String term : doc.getTermFrequency().keySet()) {
+                    built.documentFrequency.merge(term, 1, Integer::sum);
+                }
+            }
+            progress.filesProcessed.incrementAndGet();
+        }
+        built.stemsChanged = progress.documentsStemmed.get() > 0
+                || !built.byHash.keySet().equals(previous.keySet());
+        return built;
+    }
+
+    /**
+     * Seed the reuse map with the directory stems persisted by the last build
+     */
+    private void loadStemCache() {
+        try {
+            Map<String, Document> cached = new HashMap<>();
+            writeAheadLog.readStemCache(stemFingerprint)
+                    .forEach((hash, stems) -> cached.put(hash, buildDocument(hash, null, stems)));
+            directoryDocuments = cached;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable corpus stem cache: {}", e.getMessage());
+        }
+    }
+
+    private void saveStemCache(DirectoryIndex built) {
+        Map<String, List<String>> stemsByHash = new HashMap<>();
+        built.byHash.forEach((hash, doc) -> stemsByHash.put(hash, doc.getStems()));
+        try {
+            writeAheadLog.writeStemCache(stemFingerprint, stemsByHash);
+        } catch (IOException e) {
+            logger.warn("Error saving corpus stem cache: {}", e.getMessage());
+        }
+    }
+
     /**
      * Load a single document from file
      */
-    private void loadDocument(Path filePath) {
+    private Document loadDocument(Path filePath, Map<String, Document> previous, ReloadProgress progress) {
+        String docId = filePath.getFileName().toString();
         try {
             String content = Files.readString(filePath, StandardCharsets.UTF_8);
-            String docId = filePath.getFileName().toString();
-            addDocument(docId, content);
+            String hash = contentHash(content);
+
+            Document doc;
+            Document cached = previous.get(hash);
+            if (cached != null) {
+                // Stems and term frequencies are never mutated once built, so they can be shared
+                doc = new Document(docId, content);
+                doc.setStems(cached.getStems());
+                doc.setTermFrequency(cached.getTermFrequency());
+                progress.documentsReused.incrementAndGet();
+            } else {
+                doc = analyzeDocument(docId, content);
+                progress.documentsStemmed.incrementAndGet();
+            }
+            doc.setContentHash(hash);
+            return doc;
         } catch (IOException e) {
             logger.error("Error reading file {}: {}", filePath, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error adding document {}: {}", docId, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Publish the rebuilt directory documents under the current ingested ones.
+     * Everything was built beforehand, so the lock only covers a reference swap.
+     */
+    private void swapDirectoryIndex(DirectoryIndex built) {
+        mutationLock.lock();
+        try {
+            Index current = index;
+            index = new Index(built, current.ingested, current.ingestedFrequency);
+            directoryDocuments = built.byHash;
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    /**
+     * Publish the ingested documents over the current directory index.
+     * Caller must hold the mutation lock.
+     */
+    private void publishIndex() {
+        index = new Index(index.directory, List.copyOf(ingestedDocuments.values()), Map.copyOf(ingestedFrequency));
+    }
+
+    /**
+     * Stems depend on the stop words and the stemmer, so a change to either
+     * invalidates the persisted ones
+     */
+    private String stemFingerprint() {
+        List<String> stopWords = new ArrayList<>(stopWordsService.getStopWords());
+        Collections.sort(stopWords);
+        return STEMMER_ID + ":" + contentHash(String.join("\n", stopWords));
+    }
+
+    private static String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get progress of the last corpus reload
+     */
+    public Map<String, Object> getReloadStatus() {
+        ReloadProgress progress = reloadProgress;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", progress.state);
+        status.put("filesTotal", progress.filesTotal.get());
+        status.put("filesProcessed", progress.filesProcessed.get());
+        status.put("documentsReused", progress.documentsReused.get());
+        status.put("documentsStemmed", progress.documentsStemmed.get());
+        if (progress.startedAt != null) {
+            status.put("startedAt", progress.startedAt.toString());
+            Instant end = progress.finishedAt != null ? progress.finishedAt : Instant.now();
+            status.put("durationMs", end.toEpochMilli() - progress.startedAt.toEpochMilli());
         }
+        if (progress.finishedAt != null) {
+            status.put("finishedAt", progress.finishedAt.toString());
+        }
+        if (progress.error != null) {
+            status.put("error", progress.error);
+        }
+        return status;
     }
 
     /**
-     * Add a document to the corpus
+     * Add a document to the corpus. It is logged and published under the same
+     * lock, so memory and log agree on ordering, and rolled back if the log
+     * write fails. A document re-added under the same id replaces the previous one.
      */
-    public void addDocument(String docId, String content) {
+    public void addDocument(String docId, String content) throws IOException {
+        Document doc = analyzeDocument(docId, content);
+        // Encode before locking; only the sequence and frame header are built under the lock
+        CorpusWriteAheadLog.Record record = CorpusWriteAheadLog.Record.add(docId, content, doc.getStems());
+
+        CompletableFuture<Void> durable;
+        mutationLock.lock();
         try {
-            Document doc = new Document(docId, content);
+            durable = writeAheadLog.append(record);
+            Document previous = applyIngested(doc);
+            publishIndex();
+            registerUndo(record.getSequence(), () -> {
+                removeIngested(docId);
+                if (previous != null) {
+                    applyIngested(previous);
+                }
+            });
+        } finally {
+            mutationLock.unlock();
+        }
+        awaitDurable(record.getSequence(), durable);
 
-            // Tokenize and stem
-            String[] tokens = tokenizer.tokenize(content);
-            List<String> stemrs = performStemming(tokens);
-            doc.setStems(stemrs);
+        logger.debug("Added document {} with {} terms", docId, doc.getStems().size());
+        scheduleCompactionIfNeeded();
+    }
 
-            // Calculate term frequency
-            Map<String, Integer> tf = new HashMap<>();
-            for (String stem : stemrs) {
-                tf.put(stem, tf.getOrDefault(stem, 0) + 1);
+    /**
+     * Remove a document previously added through the API
+     *
+     * @return false if no ingested document has this id
+     */
+    public boolean removeDocument(String docId) throws IOException {
+        CorpusWriteAheadLog.Record record = CorpusWriteAheadLog.Record.delete(docId);
+        CompletableFuture<Void> durable;
+        mutationLock.lock();
+        try {
+            if (!ingestedDocuments.containsKey(docId)) {
+                return false;
             }
-            doc.setTermFrequency(tf);
+            durable = writeAheadLog.append(record);
+            Document doc = removeIngested(docId);
+            publishIndex();
+            registerUndo(record.getSequence(), () -> applyIngested(doc));
+        } finally {
+            mutationLock.unlock();
+        }
+        awaitDurable(record.getSequence(), durable);
+
+        logger.debug("Removed document {}", docId);
+        scheduleCompactionIfNeeded();
+        return true;
+    }
 
-            corpus.add(doc);
-            totalDocuments++;
+    private void registerUndo(long sequence, Runnable undo) {
+        // Without a log nothing can fail, and every record keeps sequence 0
+        if (writeAheadLog.isEnabled()) {
+            pendingUndo.put(sequence, undo);
+        }
+    }
+
+    /**
+     * Wait for a logged mutation; on a writer failure undo it together with
+     * every later pending one. A failed log rejects all further writes, so the
+     * failed mutations always form a suffix and are undone newest first.
+     * An interrupt does not count as a failure: the record is committed anyway.
+     */
+    private void awaitDurable(long sequence, CompletableFuture<Void> durable) throws IOException {
+        try {
+            CorpusWriteAheadLog.await(durable);
+            pendingUndo.remove(sequence);
+        } catch (IOException e) {
+            mutationLock.lock();
+            try {
+                Map.Entry<Long, Runnable> undo;
+                while ((undo = pendingUndo.lastEntry()) != null && undo.getKey() >= sequence) {
+                    pendingUndo.remove(undo.getKey());
+                    undo.getValue().run();
+                }
+                publishIndex();
+            } finally {
+                mutationLock.unlock();
+            }
+            throw e;
+        }
+    }
 
-            logger.debug("Added document {} with {} terms", docId, stemrs.size());
+    /**
+     * Tokenize and stem a document and compute its term frequencies
+     */
+    private Document analyzeDocument(String docId, String content) {
+        String[] tokens;
+        try {
+            tokens = tokenizer.tokenize(content);
         } catch (Exception e) {
-            logger.error("Error adding document {}: {}", docId, e.getMessage());
+            throw new IllegalArgumentException("Tokenization failed for document " + docId, e);
+        }
+        return buildDocument(docId, content, performStemming(tokens));
+    }
+
+    /**
+     * Build a document from already computed stems
+     */
+    private Document buildDocument(String docId, String content, List<String> stemrs) {
+        Document doc = new Document(docId, content);
+        doc.setStems(stemrs);
+
+        Map<String, Integer> tf = new HashMap<>();
+        for (String stem : stemrs) {
+            tf.put(stem, tf.getOrDefault(stem, 0) + 1);
+        }
+        doc.setTermFrequency(tf);
+        return doc;
+    }
+
+    /**
+     * Add an API-ingested document, replacing any previous one with the same id.
+     * Caller must hold the mutation lock and publish the index afterwards.
+     */
+    private Document applyIngested(Document doc) {
+        Document previous = ingestedDocuments.put(doc.getId(), doc);
+        if (previous != null) {
+            countTerms(previous, -1);
+        }
+        countTerms(doc, 1);
+        return previous;
+    }
+
+    /**
+     * Remove an API-ingested document. Caller must hold the mutation lock
+     * and publish the index afterwards.
+     */
+    private Document removeIngested(String docId) {
+        Document doc = ingestedDocuments.remove(docId);
+        if (doc != null) {
+            countTerms(doc, -1);
+        }
+        return doc;
+    }
+
+    private void countTerms(Document doc, int delta) {
+        for (String term : doc.getTermFrequency().keySet()) {
+            ingestedFrequency.merge(term, delta, (df, d) -> df + d > 0 ? df + d : null);
+        }
+    }
+
+    /**
+     * Replay the write-ahead log on top of the last snapshot.
+     * Stems come from the log, so nothing is stemmed again.
+     */
+    private void recoverIngestedDocuments() {
+        try {
+            int replayed;
+            mutationLock.lock();
+            try {
+                replayed = writeAheadLog.recover(record -> {
+                    if (record.isAdd()) {
+                        applyIngested(buildDocument(record.getDocId(), record.getContent(), record.getStems()));
+                    } else {
+                        removeIngested(record.getDocId());
+                    }
+                });
+                publishIndex();
+            } finally {
+                mutationLock.unlock();
+            }
+            if (replayed > 0) {
+                logger.info("Restored {} ingested documents ({} in corpus)",
+                        index.ingested.size(), index.getTotalDocuments());
+            }
+        } catch (IOException e) {
+            // Starting with an empty log here would shadow the existing one
+            throw new UncheckedIOException("Error recovering corpus write-ahead log", e);
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (maintenanceExecutor != null && writeAheadLog.needsCompaction()
+                && compactionScheduled.compareAndSet(false, true)) {
+            maintenanceExecutor.execute(this::compactWriteAheadLog);
+        }
+    }
+
+    /**
+     * Snapshot the ingested documents and drop the log segments it covers
+     */
+    private void compactWriteAheadLog() {
+        compactionScheduled.set(false);
+        List<Document> live;
+        CorpusWriteAheadLog.Checkpoint checkpoint;
+        try {
+            // The mutation lock keeps appends out while the cut is taken
+            mutationLock.lock();
+            try {
+                if (!writeAheadLog.hasEntriesSinceSnapshot()) {
+                    return;
+                }
+                live = index.ingested;
+                checkpoint = writeAheadLog.rotate();
+            } finally {
+                mutationLock.unlock();
+            }
+
+            List<CorpusWriteAheadLog.Record> documents = new ArrayList<>(live.size());
+            for (Document doc : live) {
+                documents.add(CorpusWriteAheadLog.Record.add(doc.getId(), doc.getContent(), doc.getStems()));
+            }
+            writeAheadLog.writeSnapshot(checkpoint, documents);
+        } catch (IOException e) {
+            logger.error("Error compacting corpus write-ahead log: {}", e.getMessage());
         }
     }
 
@@ -151,23 +667,23 @@ public class CorpusService {
     }
 
     /**
-     * Calculate document frequencies for all terms
+     * Index that queries read; pass the same instance to every calculation
+     * of one request so they all see the same corpus
      */
-    private void calculateDocumentFrequencies() {
-        documentFrequency.clear();
-        for (Document doc : corpus) {
-            Set<String> uniqueTerms = new HashSet<>(doc.getStems());
-            for (String term : uniqueTerms) {
-                documentFrequency.put(term, documentFrequency.getOrDefault(term, 0) + 1);
-            }
-        }
+    Index currentIndex() {
+        return index;
     }
 
     /**
      * Calculate TF-IDF for stems
      */
     public Map<String, Double> calculateTfIdf(List<String> stemrs) {
+        return calculateTfIdf(stemrs, index);
+    }
+
+    Map<String, Double> calculateTfIdf(List<String> stemrs, Index snapshot) {
         Map<String, Double> tfidfValues = new HashMap<>();
+        int totalDocuments = snapshot.getTotalDocuments();
 
         if (totalDocuments == 0) {
             logger.warn("No corpus loaded, returning simple TF values");
@@ -186,7 +702,7 @@ public class CorpusService {
             String term = entry.getKey();
             double tf = (double) entry.getValue() / totalTerms;
 
-            int df = documentFrequency.getOrDefault(term, 1);
+            int df = Math.max(snapshot.documentFrequency(term), 1);
             double idf = Math.log((double) (totalDocuments + 1) / (df + 1));
 
             double tfidf = tf * idf;
@@ -219,23 +735,25 @@ public class CorpusService {
      * Calculate cosine similarity with corpus
      */
     public Map<String, Double> calculateCosineSimilarities(List<String> inputStems) {
-        Map<String, Double> similarities = new HashMap<>();
+        return calculateCosineSimilarities(inputStems, index);
+    }
 
-        if (corpus.isEmpty()) {
-            logger.warn("No corpus loaded for similarity calculation");
-            return similarities;
-        }
+    Map<String, Double> calculateCosineSimilarities(List<String> inputStems, Index snapshot) {
+        Map<String, Double> similarities = new HashMap<>();
 
         Map<String, Integer> inputTf = new HashMap<>();
         for (String stem : inputStems) {
             inputTf.put(stem, inputTf.getOrDefault(stem, 0) + 1);
         }
 
-        for (Document doc : corpus) {
-            double similarity = cosineSimilarity(inputTf, doc.getTermFrequency());
-            similarities.put(doc.getId(), similarity);
+        if (snapshot.getTotalDocuments() == 0) {
+            logger.warn("No corpus loaded for similarity calculation");
+            return similarities;
         }
 
+        snapshot.documents().forEach(doc ->
+                similarities.put(doc.getId(), cosineSimilarity(inputTf, doc.getTermFrequency())));
+
         return similarities.entrySet().stream()
                 .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
                 .limit(5)
@@ -283,18 +801,19 @@ public class CorpusService {
      */
     public Map<String, Object> getCorpusStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalDocuments", totalDocuments);
-        stats.put("uniqueTerms", documentFrequency.size());
+        Index current = index;
+        stats.put("totalDocuments", current.getTotalDocuments());
+        stats.put("uniqueTerms", current.uniqueTerms());
         stats.put("averageDocumentLength",
-                corpus.stream().mapToInt(d -> d.getStems().size()).average().orElse(0.0));
+                current.documents().mapToInt(d -> d.getStems().size()).average().orElse(0.0));
         return stats;
     }
 
     public int getTotalDocuments() {
-        return totalDocuments;
+        return index.getTotalDocuments();
     }
 
     public List<Document> getCorpus() {
-        return corpus;
+        return index.documents().toList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,801 @@
+package com.bakir.textmining.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of corpus mutations (add / delete) with group commit.
+ *
+ * Records are framed as [length][sequence][payload crc][header crc][payload]
+ * and written by a single writer thread, which drains every pending record
+ * into one write and one fsync. Compaction rolls the log to a new segment,
+ * writes a snapshot of the live documents and deletes the segments the
+ * snapshot covers.
+ *
+ * A failed write is truncated away and puts the log into a failed state:
+ * every later append is rejected until restart, so the records that did
+ * not make it to disk are always a suffix of the log.
+ */
+@Component
+public class CorpusWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(CorpusWriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String STEM_CACHE_FILE = "directory-stems.bin";
+    private static final int SNAPSHOT_MAGIC = 0x434F5250;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int STEM_CACHE_VERSION = 3;
+    private static final int FRAME_HEADER_BYTES = 20;
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_STEMS = 3;
+
+    /**
+     * SYNC acknowledges a record once its group has been fsynced,
+     * ASYNC once it has been written, fsyncing every sync interval.
+     */
+    public enum Durability { SYNC, ASYNC }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Durability durability;
+    private final long syncIntervalNanos;
+    private final int maxBatchSize;
+    private final long compactionThreshold;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+    private FileChannel channel;
+    private boolean dirty;
+    private long lastSyncNanos;
+    private volatile IOException failure;
+
+    private long lastSequence = 0;
+    private volatile long snapshotSequence = 0;
+
+    public CorpusWriteAheadLog(
+            @Value("${corpus.wal.enabled:true}") boolean enabled,
+            @Value("${corpus.wal.directory:corpus/wal}") String directory,
+            @Value("${corpus.wal.durability:sync}") String durability,
+            @Value("${corpus.wal.sync-interval-ms:200}") long syncIntervalMs,
+            @Value("${corpus.wal.max-batch-size:512}") int maxBatchSize,
+            @Value("${corpus.wal.compaction-threshold:10000}") long compactionThreshold) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.durability = Durability.valueOf(durability.trim().toUpperCase(Locale.ROOT));
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMs));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * A logged mutation; ADD records carry the pre-computed stems so that
+     * replay does not need to run the stemmer again. Records built by the
+     * factories are encoded up front, so callers can do it outside their locks.
+     */
+    public static class Record {
+        private final byte op;
+        private long sequence;
+        private final String docId;
+        private final String content;
+        private final List<String> stems;
+        private byte[] payload;
+        private int payloadCrc;
+        private int frameLength;
+
+        private Record(byte op, long sequence, String docId, String content, List<String> stems) {
+            this.op = op;
+            this.sequence = sequence;
+            this.docId = docId;
+            this.content = content;
+            this.stems = stems;
+        }
+
+        public static Record add(String docId, String content, List<String> stems) {
+            return new Record(OP_ADD, 0, docId, content, stems).encoded();
+        }
+
+        public static Record delete(String docId) {
+            return new Record(OP_DELETE, 0, docId, null, null).encoded();
+        }
+
+        private static Record stems(String contentHash, List<String> stems) {
+            return new Record(OP_STEMS, 0, contentHash, null, stems).encoded();
+        }
+
+        private Record encoded() {
+            payload = encode(this);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            payloadCrc = (int) crc.getValue();
+            return this;
+        }
+
+        public boolean isAdd() { return op == OP_ADD; }
+        public long getSequence() { return sequence; }
+        public String getDocId() { return docId; }
+        public String getContent() { return content; }
+        public List<String> getStems() { return stems; }
+    }
+
+    /**
+     * Cut point returned by {@link #rotate()}: every record up to the
+     * sequence lives in segments that the next snapshot makes obsolete.
+     */
+    public static class Checkpoint {
+        private final long sequence;
+        private final CompletableFuture<Void> rolled;
+
+        private Checkpoint(long sequence, CompletableFuture<Void> rolled) {
+            this.sequence = sequence;
+            this.rolled = rolled;
+        }
+
+        public long getSequence() { return sequence; }
+    }
+
+    private static class PendingWrite {
+        private final byte[] header;
+        private final byte[] payload;
+        private final long nextSegmentStart;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(byte[] header, byte[] payload, long nextSegmentStart) {
+            this.header = header;
+            this.payload = payload;
+            this.nextSegmentStart = nextSegmentStart;
+        }
+    }
+
+    /**
+     * Replay the last snapshot and every logged record after it, then open
+     * the log for appending. Must be called once before {@link #append}.
+     */
+    public synchronized int recover(Consumer<Record> consumer) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        Files.createDirectories(directory);
+
+        int replayed = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            List<Record> documents = new ArrayList<>();
+            snapshotSequence = readRecordsFile(snapshot, documents::add);
+            documents.forEach(consumer);
+            replayed += documents.size();
+        }
+        lastSequence = snapshotSequence;
+
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            boolean lastSegment = i == segments.size() - 1;
+            replayed += replaySegment(segments.get(i), lastSegment, consumer);
+        }
+
+        if (segments.isEmpty()) {
+            channel = openSegment(segmentPath(lastSequence + 1));
+            syncDirectory();
+        } else {
+            channel = openSegment(segments.get(segments.size() - 1));
+        }
+        lastSyncNanos = System.nanoTime();
+
+        writerThread = new Thread(this::runWriter, "corpus-wal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        logger.info("Recovered {} corpus log records up to sequence {} ({} durability)",
+                replayed, lastSequence, durability);
+        return replayed;
+    }
+
+    /**
+     * Queue a record for the next group commit and assign its sequence.
+     * The returned future completes once the record is durable per the
+     * configured mode.
+     *
+     * @throws IllegalArgumentException if the record exceeds the frame size limit
+     * @throws IOException if an earlier write failed
+     */
+    public CompletableFuture<Void> append(Record record) throws IOException {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (record.payload.length > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException(String.format(
+                    "Document %s is too large for the corpus log (%d bytes, limit %d)",
+                    record.docId, record.payload.length, MAX_FRAME_BYTES));
+        }
+
+        synchronized (this) {
+            checkWritable();
+            record.sequence = ++lastSequence;
+            PendingWrite write = new PendingWrite(
+                    header(record.payload.length, record.sequence, record.payloadCrc), record.payload, 0);
+            queue.add(write);
+            return write.done;
+        }
+    }
+
+    /**
+     * Roll the log to a fresh segment. Callers must capture the state they
+     * snapshot while holding the same lock they use around {@link #append}.
+     */
+    public synchronized Checkpoint rotate() throws IOException {
+        if (!enabled) {
+            return new Checkpoint(lastSequence, CompletableFuture.completedFuture(null));
+        }
+        checkWritable();
+        PendingWrite roll = new PendingWrite(null, null, lastSequence + 1);
+        queue.add(roll);
+        return new Checkpoint(lastSequence, roll.done);
+    }
+
+    private void checkWritable() throws IOException {
+        if (writerThread == null) {
+            throw new IllegalStateException("Corpus write-ahead log has not been recovered");
+        }
+        if (failure != null) {
+            throw new IOException("Corpus log is read-only after a write failure", failure);
+        }
+    }
+
+    /**
+     * Persist the live documents as of the checkpoint and drop the log
+     * segments it supersedes.
+     */
+    public void writeSnapshot(Checkpoint checkpoint, List<Record> documents) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        await(checkpoint.rolled);
+
+        // The rename is made durable before the segments it replaces disappear
+        writeRecordsFile(directory.resolve(SNAPSHOT_FILE), checkpoint.sequence, documents);
+        snapshotSequence = checkpoint.sequence;
+
+        for (Path segment : listSegments()) {
+            if (segmentStart(segment) <= checkpoint.sequence) {
+                Files.deleteIfExists(segment);
+            }
+        }
+        logger.info("Compacted corpus log: {} documents snapshotted at sequence {}",
+                documents.size(), checkpoint.sequence);
+    }
+
+    /**
+     * Persist the stems of the corpus directory documents by content hash,
+     * so that a restart only stems files that changed. The fingerprint
+     * identifies the analysis (stop words, stemmer) that produced them.
+     */
+    public void writeStemCache(String fingerprint, Map<String, List<String>> stemsByHash) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        List<Record> entries = new ArrayList<>(stemsByHash.size());
+        stemsByHash.forEach((hash, stems) -> entries.add(Record.stems(hash, stems)));
+        Files.createDirectories(directory);
+        writeRecordsFile(directory.resolve(STEM_CACHE_FILE), out -> {
+            out.writeInt(STEM_CACHE_VERSION);
+            writeString(out, fingerprint);
+        }, entries);
+    }
+
+    /**
+     * Stems written by {@link #writeStemCache}, empty if there are none or
+     * they were written by an older format or with a different fingerprint
+     */
+    public Map<String, List<String>> readStemCache(String fingerprint) throws IOException {
+        Map<String, List<String>> stemsByHash = new HashMap<>();
+        Path cache = directory.resolve(STEM_CACHE_FILE);
+        if (!enabled || !Files.exists(cache)) {
+            return stemsByHash;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Unrecognised corpus stem cache: " + cache);
+            }
+            if (in.readInt() != STEM_CACHE_VERSION || !fingerprint.equals(readString(in))) {
+                logger.info("Corpus stem cache was built with other stop words or stemmer, ignoring it");
+                return stemsByHash;
+            }
+            readFrames(in, cache, record -> stemsByHash.put(record.docId, record.stems));
+        }
+        return stemsByHash;
+    }
+
+    public synchronized boolean hasEntriesSinceSnapshot() {
+        return lastSequence > snapshotSequence;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return lastSequence - snapshotSequence >= compactionThreshold;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Wait for an appended record, unwrapping the writer's failure. Only a
+     * writer failure is reported: the record is already queued and will be
+     * committed anyway, so an interrupt is deferred until the wait is over.
+     */
+    public static void await(CompletableFuture<Void> future) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Thread writer;
+        PendingWrite stop;
+        synchronized (this) {
+            writer = writerThread;
+            if (writer == null) {
+                return;
+            }
+            stop = new PendingWrite(null, null, 0);
+            queue.add(stop);
+            writerThread = null;
+        }
+        try {
+            await(stop.done);
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (IOException e) {
+            logger.error("Error closing corpus log: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer loop: one write and at most one fsync per drained batch. In
+     * ASYNC mode unsynced writes are forced once the sync interval has
+     * elapsed, however busy the queue is.
+     */
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                long timeout = dirty
+                        ? Math.max(0, lastSyncNanos + syncIntervalNanos - System.nanoTime())
+                        : syncIntervalNanos;
+                PendingWrite first = queue.poll(timeout, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    running = writeBatch(batch);
+                }
+                if (running && dirty && System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+                    syncIfDirty();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean writeBatch(List<PendingWrite> batch) {
+        List<PendingWrite> group = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.payload != null) {
+                group.add(write);
+                continue;
+            }
+            commitGroup(group);
+            group.clear();
+            if (write.nextSegmentStart > 0) {
+                rollSegment(write);
+            } else {
+                closeSegment(write);
+                return false;
+            }
+        }
+        commitGroup(group);
+        return true;
+    }
+
+    private void commitGroup(List<PendingWrite> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            group.forEach(write -> write.done.completeExceptionally(failure));
+            return;
+        }
+
+        long position = -1;
+        try {
+            position = channel.size();
+            ByteBuffer[] buffers = new ByteBuffer[group.size() * 2];
+            long remaining = 0;
+            for (int i = 0; i < group.size(); i++) {
+                PendingWrite write = group.get(i);
+                buffers[2 * i] = ByteBuffer.wrap(write.header);
+                buffers[2 * i + 1] = ByteBuffer.wrap(write.payload);
+                remaining += write.header.length + write.payload.length;
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+
+            if (durability == Durability.SYNC) {
+                channel.force(false);
+                lastSyncNanos = System.nanoTime();
+            } else {
+                dirty = true;
+            }
+            group.forEach(write -> write.done.complete(null));
+        } catch (IOException e) {
+            logger.error("Error writing corpus log, rejecting further appends: {}", e.getMessage());
+            failure = e;
+            // Drop the partial group so nothing is ever appended after a torn frame
+            if (position >= 0) {
+                try {
+                    channel.truncate(position);
+                    channel.force(false);
+                } catch (IOException truncateError) {
+                    logger.error("Error truncating corpus log: {}", truncateError.getMessage());
+                }
+            }
+            group.forEach(write -> write.done.completeExceptionally(e));
+        }
+    }
+
+    private void syncIfDirty() {
+        if (!dirty || failure != null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+            lastSyncNanos = System.nanoTime();
+        } catch (IOException e) {
+            // Acknowledged records may not be on disk; stop accepting new ones
+            logger.error("Error syncing corpus log, rejecting further appends: {}", e.getMessage());
+            failure = e;
+        }
+    }
+
+    private void rollSegment(PendingWrite roll) {
+        if (failure != null) {
+            roll.done.completeExceptionally(failure);
+            return;
+        }
+
+        FileChannel next;
+        try {
+            next = openSegment(segmentPath(roll.nextSegmentStart));
+        } catch (IOException e) {
+            logger.error("Error rolling corpus log: {}", e.getMessage());
+            roll.done.completeExceptionally(e);
+            return;
+        }
+        try {
+            syncDirectory();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Error rolling corpus log, rejecting further appends: {}", e.getMessage());
+            failure = e;
+            closeQuietly(next);
+            roll.done.completeExceptionally(e);
+            return;
+        }
+        channel = next;
+        dirty = false;
+        lastSyncNanos = System.nanoTime();
+        roll.done.complete(null);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing corpus log segment: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Make renames, creations and deletions in the log directory durable
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Directories cannot be opened as channels on Windows, where NTFS journals renames itself
+            logger.debug("Cannot open {} to sync it: {}", directory, e.getMessage());
+            return;
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    private void closeSegment(PendingWrite stop) {
+        try {
+            channel.force(false);
+            channel.close();
+            stop.done.complete(null);
+        } catch (IOException e) {
+            stop.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Replay one segment; a torn or corrupt tail on the active segment is
+     * truncated so that new records are appended after the last good one.
+     * Older segments were fsynced before the log rolled past them, so an
+     * unreadable tail there is corruption and fails recovery rather than
+     * replaying later records over the gap.
+     */
+    private int replaySegment(Path segment, boolean lastSegment, Consumer<Record> consumer) throws IOException {
+        int replayed = 0;
+        long validBytes = 0;
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in)));
+            Record record;
+            while ((record = readFrame(data)) != null) {
+                validBytes += record.frameLength;
+                lastSequence = Math.max(lastSequence, record.sequence);
+                if (record.sequence > snapshotSequence) {
+                    consumer.accept(record);
+                    replayed++;
+                }
+            }
+
+            long size = in.size();
+            if (validBytes < size) {
+                if (!lastSegment) {
+                    throw new IOException(String.format("Corrupt corpus log %s: %d unreadable bytes after offset %d",
+                            segment.getFileName(), size - validBytes, validBytes));
+                }
+                logger.warn("Corpus log {} has {} unreadable trailing bytes",
+                        segment.getFileName(), size - validBytes);
+                in.truncate(validBytes);
+                in.force(true);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Writes the version and metadata that follow the magic number of a records file
+     */
+    private interface FileHeader {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void writeRecordsFile(Path target, long sequence, List<Record> records) throws IOException {
+        writeRecordsFile(target, out -> {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(sequence);
+        }, records);
+    }
+
+    /**
+     * Write a records file atomically: temp file, fsync, rename, directory fsync
+     */
+    private void writeRecordsFile(Path target, FileHeader header, List<Record> records) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            header.write(out);
+            out.writeInt(records.size());
+            for (Record record : records) {
+                out.write(header(record.payload.length, 0, record.payloadCrc));
+                out.write(record.payload);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    private long readRecordsFile(Path file, Consumer<Record> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognised corpus snapshot: " + file);
+            }
+            long sequence = in.readLong();
+            readFrames(in, file, consumer);
+            return sequence;
+        }
+    }
+
+    private static void readFrames(DataInputStream in, Path file, Consumer<Record> consumer) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Record record = readFrame(in);
+            if (record == null) {
+                throw new IOException("Corrupt corpus records file: " + file);
+            }
+            consumer.accept(record);
+        }
+    }
+
+    private static Record readFrame(DataInputStream in) throws IOException {
+        byte[] header = new byte[FRAME_HEADER_BYTES];
+        byte[] payload;
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        try {
+            in.readFully(header);
+            if (fields.getInt(16) != headerCrc(header)) {
+                return null;
+            }
+            int length = fields.getInt(0);
+            if (length < 0 || length > MAX_FRAME_BYTES) {
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != fields.getInt(12)) {
+            return null;
+        }
+        Record record = decode(payload, fields.getLong(4));
+        record.frameLength = FRAME_HEADER_BYTES + payload.length;
+        return record;
+    }
+
+    /**
+     * Frame header: [length][sequence][payload crc][crc of the first 16 bytes].
+     * The payload crc is computed ahead of time, so only this runs under the lock.
+     */
+    private static byte[] header(int length, long sequence, int payloadCrc) {
+        byte[] header = new byte[FRAME_HEADER_BYTES];
+        ByteBuffer.wrap(header)
+                .putInt(length)
+                .putLong(sequence)
+                .putInt(payloadCrc);
+        ByteBuffer.wrap(header).putInt(16, headerCrc(header));
+        return header;
+    }
+
+    private static int headerCrc(byte[] header) {
+        CRC32 crc = new CRC32();
+        crc.update(header, 0, 16);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Record record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(record.op);
+            writeString(out, record.docId);
+            if (record.op == OP_ADD) {
+                writeString(out, record.content);
+            }
+            if (record.op != OP_DELETE) {
+                out.writeInt(record.stems.size());
+                for (String stem : record.stems) {
+                    writeString(out, stem);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Record decode(byte[] payload, long sequence) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String docId = readString(in);
+        if (op == OP_DELETE) {
+            return new Record(op, sequence, docId, null, null);
+        }
+        if (op != OP_ADD && op != OP_STEMS) {
+            throw new IOException("Unknown corpus log operation: " + op);
+        }
+        String content = op == OP_ADD ? readString(in) : null;
+        int stemCount = in.readInt();
+        List<String> stems = new ArrayList<>(stemCount);
+        for (int i = 0; i < stemCount; i++) {
+            stems.add(readString(in));
+        }
+        return new Record(op, sequence, docId, content, stems);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(CorpusWriteAheadLog::segmentStart))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static FileChannel openSegment(Path segment) throws IOException {
+        return FileChannel.open(segment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -45,11 +45,13 @@ public class TextMiningService {
         logger.debug("Stemming complete: {} stems generated", stemrs.size());
 
 
-        Map<String, Double> tfidfValues = corpusService.calculateTfIdf(stemrs);
+        // Both calculations read the same index, even if a reload or ingest publishes a new one meanwhile
+        CorpusService.Index corpusIndex = corpusService.currentIndex();
+        Map<String, Double> tfidfValues = corpusService.calculateTfIdf(stemrs, corpusIndex);
         logger.debug("TF-IDF calculation complete");
 
 
-        Map<String, Double> similarities = corpusService.calculateCosineSimilarities(stemrs);
+        Map<String, Double> similarities = corpusService.calculateCosineSimilarities(stemrs, corpusIndex);
         logger.debug("Cosine similarity calculation complete");
 
 
@@ -0,0 +1,80 @@
+package com.bakir.textmining.Service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorpusServiceDurabilityTest {
+
+    @TempDir
+    Path workDir;
+
+    private CorpusWriteAheadLog writeAheadLog;
+    private CorpusService corpusService;
+
+    /**
+     * Acknowledges records a little after the writer commits them, so that
+     * callers are still waiting when they get interrupted
+     */
+    private static class SlowAcknowledgingLog extends CorpusWriteAheadLog {
+        SlowAcknowledgingLog(Path directory) {
+            super(true, directory.toString(), "sync", 200, 512, 10000);
+        }
+
+        @Override
+        public CompletableFuture<Void> append(Record record) throws IOException {
+            return super.append(record).thenRunAsync(() -> { },
+                    CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        Thread.interrupted();
+        stop();
+    }
+
+    @Test
+    void interruptedIngestIsKeptInMemoryAndAfterRestart() throws Exception {
+        start();
+
+        Thread.currentThread().interrupt();
+        corpusService.addDocument("x", "alpha");
+        assertThat(Thread.interrupted()).as("interrupt flag restored").isTrue();
+        corpusService.addDocument("y", "beta");
+
+        assertThat(corpusService.getCorpus())
+                .extracting(CorpusService.Document::getId)
+                .containsExactly("x", "y");
+
+        stop();
+        start();
+        assertThat(corpusService.getCorpus())
+                .extracting(CorpusService.Document::getId)
+                .containsExactly("x", "y");
+    }
+
+    private void start() throws Exception {
+        Path corpusDir = workDir.resolve("arabic");
+        Files.createDirectories(corpusDir);
+        writeAheadLog = new SlowAcknowledgingLog(workDir.resolve("wal"));
+        corpusService = new CorpusService(new StopWordsService(), corpusDir.toString(), writeAheadLog, 300000);
+        corpusService.initialize();
+    }
+
+    private void stop() {
+        if (corpusService != null) {
+            corpusService.shutdown();
+            writeAheadLog.close();
+            corpusService = null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.bakir.textmining.Service;
+
+import com.bakir.textmining.Controler.CorpusController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorpusServiceReloadTest {
+
+    private static final String BLOCKING_TOKEN = "BLOCKING";
+
+    @TempDir
+    Path workDir;
+
+    private Path corpusDir;
+    private RecordingStopWordsService stopWords;
+    private CorpusWriteAheadLog writeAheadLog;
+    private CorpusService corpusService;
+
+    /**
+     * Records every token the corpus service stems, and parks the reload
+     * thread on {@link #BLOCKING_TOKEN} until the test releases it.
+     */
+    private static class RecordingStopWordsService extends StopWordsService {
+        private final Set<String> seenTokens = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public boolean isStopWord(String word) {
+            seenTokens.add(word);
+            if (BLOCKING_TOKEN.equals(word)) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return false;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        corpusDir = workDir.resolve("arabic");
+        Files.createDirectories(corpusDir);
+        write("unchanged.txt", "alpha");
+        write("changed.txt", "beta");
+
+        stopWords = new RecordingStopWordsService();
+        writeAheadLog = new CorpusWriteAheadLog(true, workDir.resolve("wal").toString(), "sync", 200, 512, 10000);
+        corpusService = new CorpusService(stopWords, corpusDir.toString(), writeAheadLog, 300000);
+        corpusService.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stopWords.release.countDown();
+        corpusService.shutdown();
+        writeAheadLog.close();
+    }
+
+    @Test
+    void reloadReusesStemsOfUnchangedFiles() throws Exception {
+        write("changed.txt", "gamma");
+        stopWords.seenTokens.clear();
+
+        assertThat(corpusService.reloadCorpusAsync()).isTrue();
+        Map<String, Object> status = awaitReload();
+
+        assertThat(status.get("state")).isEqualTo("COMPLETED");
+        assertThat(status.get("documentsReused")).isEqualTo(1);
+        assertThat(status.get("documentsStemmed")).isEqualTo(1);
+        assertThat(stopWords.seenTokens).contains("gamma").doesNotContain("alpha");
+    }
+
+    @Test
+    void documentsIngestedDuringReloadSurviveSwap() throws Exception {
+        write("blocking.txt", BLOCKING_TOKEN);
+
+        assertThat(corpusService.reloadCorpusAsync()).isTrue();
+        assertThat(stopWords.blocked.await(10, TimeUnit.SECONDS)).isTrue();
+        corpusService.addDocument("ingested", "delta");
+        stopWords.release.countDown();
+        awaitReload();
+
+        assertThat(corpusService.getCorpus())
+                .extracting(CorpusService.Document::getId)
+                .containsExactlyInAnyOrder("changed.txt", "unchanged.txt", "blocking.txt", "ingested");
+        assertThat(corpusService.getTotalDocuments()).isEqualTo(4);
+    }
+
+    @Test
+    void reloadEndpointReturnsConflictWhileRunning() throws Exception {
+        write("blocking.txt", BLOCKING_TOKEN);
+        CorpusController controller = new CorpusController(corpusService);
+
+        assertThat(controller.reloadCorpus().getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(stopWords.blocked.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(corpusService.getReloadStatus().get("state")).isEqualTo("RUNNING");
+        assertThat(controller.reloadCorpus().getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+        stopWords.release.countDown();
+        assertThat(awaitReload().get("state")).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    void queriesKeepReadingTheIndexTheyStartedWith() throws Exception {
+        CorpusService.Index before = corpusService.currentIndex();
+        write("added.txt", "alpha gamma");
+        assertThat(corpusService.reloadCorpusAsync()).isTrue();
+        awaitReload();
+        corpusService.addDocument("ingested", "alpha");
+
+        assertThat(corpusService.calculateCosineSimilarities(List.of("alpha"), before))
+                .containsOnlyKeys("changed.txt", "unchanged.txt");
+        assertThat(corpusService.calculateCosineSimilarities(List.of("alpha")))
+                .containsOnlyKeys("changed.txt", "unchanged.txt", "added.txt", "ingested");
+    }
+
+    @Test
+    void restartIgnoresStemCacheBuiltWithOtherStopWords() throws Exception {
+        restart(new RecordingStopWordsService());
+        assertThat(corpusService.getReloadStatus().get("documentsReused")).isEqualTo(2);
+        assertThat(stopWords.seenTokens).isEmpty();
+
+        RecordingStopWordsService changed = new RecordingStopWordsService();
+        changed.loadStopWords();
+        restart(changed);
+        assertThat(corpusService.getReloadStatus().get("documentsStemmed")).isEqualTo(2);
+        assertThat(stopWords.seenTokens).contains("alpha", "beta");
+    }
+
+    private void restart(RecordingStopWordsService restartedStopWords) throws Exception {
+        corpusService.shutdown();
+        writeAheadLog.close();
+        stopWords = restartedStopWords;
+        writeAheadLog = new CorpusWriteAheadLog(true, workDir.resolve("wal").toString(), "sync", 200, 512, 10000);
+        corpusService = new CorpusService(stopWords, corpusDir.toString(), writeAheadLog, 300000);
+        corpusService.initialize();
+    }
+
+    private Map<String, Object> awaitReload() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Map<String, Object> status = corpusService.getReloadStatus();
+        while ("RUNNING".equals(status.get("state")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = corpusService.getReloadStatus();
+        }
+        return status;
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.writeString(corpusDir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,166 @@
+package com.bakir.textmining.Service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CorpusWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAddsAndDeletesAfterRestart() throws IOException {
+        CorpusWriteAheadLog log = openForWriting();
+        append(log, CorpusWriteAheadLog.Record.add("a", "content a", List.of("stem1", "stem2")));
+        append(log, CorpusWriteAheadLog.Record.add("b", "content b", List.of("stem3")));
+        append(log, CorpusWriteAheadLog.Record.delete("a"));
+        log.close();
+
+        List<CorpusWriteAheadLog.Record> replayed = replayAll();
+
+        assertThat(replayed).extracting(CorpusWriteAheadLog.Record::getDocId).containsExactly("a", "b", "a");
+        assertThat(replayed).extracting(CorpusWriteAheadLog.Record::isAdd).containsExactly(true, true, false);
+        assertThat(replayed).extracting(CorpusWriteAheadLog.Record::getSequence).containsExactly(1L, 2L, 3L);
+        assertThat(replayed.get(0).getContent()).isEqualTo("content a");
+        assertThat(replayed.get(0).getStems()).containsExactly("stem1", "stem2");
+    }
+
+    @Test
+    void truncatesTornTailOfLastSegment() throws IOException {
+        CorpusWriteAheadLog log = openForWriting();
+        append(log, CorpusWriteAheadLog.Record.add("a", "content a", List.of("a")));
+        append(log, CorpusWriteAheadLog.Record.add("b", "content b", List.of("b")));
+        log.close();
+
+        Path segment = segments().get(0);
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 1, 0, 'g', 'a', 'r', 'b'}, StandardOpenOption.APPEND);
+
+        CorpusWriteAheadLog reopened = open();
+        assertThat(recover(reopened)).extracting(CorpusWriteAheadLog.Record::getDocId).containsExactly("a", "b");
+        assertThat(Files.size(segment)).isEqualTo(validSize);
+
+        // New records go after the last good frame, not after the garbage
+        append(reopened, CorpusWriteAheadLog.Record.add("c", "content c", List.of("c")));
+        reopened.close();
+        assertThat(replayAll()).extracting(CorpusWriteAheadLog.Record::getDocId).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void failsRecoveryOnCorruptTailOfOlderSegment() throws IOException {
+        CorpusWriteAheadLog log = openForWriting();
+        append(log, CorpusWriteAheadLog.Record.add("a", "content a", List.of("a")));
+        log.rotate();
+        append(log, CorpusWriteAheadLog.Record.add("b", "content b", List.of("b")));
+        log.close();
+
+        List<Path> segments = segments();
+        assertThat(segments).hasSize(2);
+        Files.write(segments.get(0), new byte[] {0, 0, 1, 0, 'g', 'a', 'r', 'b'}, StandardOpenOption.APPEND);
+
+        CorpusWriteAheadLog reopened = open();
+        try {
+            assertThatThrownBy(() -> recover(reopened))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining(segments.get(0).getFileName().toString());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void doesNotReplayRecordsCoveredBySnapshotWhenSegmentDeletesWereLost() throws IOException {
+        CorpusWriteAheadLog log = openForWriting();
+        CorpusWriteAheadLog.Record a = CorpusWriteAheadLog.Record.add("a", "content a", List.of("a"));
+        CorpusWriteAheadLog.Record b = CorpusWriteAheadLog.Record.add("b", "content b", List.of("b"));
+        append(log, a);
+        append(log, b);
+
+        CorpusWriteAheadLog.Checkpoint checkpoint = log.rotate();
+        Path oldSegment = segments().get(0);
+        byte[] oldSegmentBytes = Files.readAllBytes(oldSegment);
+        log.writeSnapshot(checkpoint, List.of(a, b));
+        log.close();
+
+        // Simulate a crash after the snapshot rename but before the delete reached disk
+        assertThat(oldSegment).doesNotExist();
+        Files.write(oldSegment, oldSegmentBytes);
+
+        assertThat(replayAll()).extracting(CorpusWriteAheadLog.Record::getDocId).containsExactly("a", "b");
+    }
+
+    @Test
+    void compactionKeepsRecordsAppendedAfterCheckpoint() throws IOException {
+        CorpusWriteAheadLog log = openForWriting();
+        CorpusWriteAheadLog.Record a = CorpusWriteAheadLog.Record.add("a", "content a", List.of("a"));
+        CorpusWriteAheadLog.Record b = CorpusWriteAheadLog.Record.add("b", "content b", List.of("b"));
+        append(log, a);
+        append(log, b);
+
+        CorpusWriteAheadLog.Checkpoint checkpoint = log.rotate();
+        append(log, CorpusWriteAheadLog.Record.add("c", "content c", List.of("c")));
+        log.writeSnapshot(checkpoint, List.of(a, b));
+        log.close();
+
+        assertThat(segments()).hasSize(1);
+        List<CorpusWriteAheadLog.Record> replayed = replayAll();
+        assertThat(replayed).extracting(CorpusWriteAheadLog.Record::getDocId).containsExactly("a", "b", "c");
+        assertThat(replayed.get(2).getSequence()).isEqualTo(3L);
+    }
+
+    @Test
+    void ignoresStemCacheWrittenWithAnotherFingerprint() throws IOException {
+        CorpusWriteAheadLog log = open();
+        log.writeStemCache("stemmer:1", Map.of("hash", List.of("stem")));
+
+        assertThat(log.readStemCache("stemmer:1")).containsExactly(Map.entry("hash", List.of("stem")));
+        assertThat(log.readStemCache("stemmer:2")).isEmpty();
+    }
+
+    private CorpusWriteAheadLog open() {
+        return new CorpusWriteAheadLog(true, directory.toString(), "sync", 200, 512, 10000);
+    }
+
+    private CorpusWriteAheadLog openForWriting() throws IOException {
+        CorpusWriteAheadLog log = open();
+        log.recover(record -> { });
+        return log;
+    }
+
+    private static List<CorpusWriteAheadLog.Record> recover(CorpusWriteAheadLog log) throws IOException {
+        List<CorpusWriteAheadLog.Record> replayed = new ArrayList<>();
+        log.recover(replayed::add);
+        return replayed;
+    }
+
+    private List<CorpusWriteAheadLog.Record> replayAll() throws IOException {
+        CorpusWriteAheadLog log = open();
+        try {
+            return recover(log);
+        } finally {
+            log.close();
+        }
+    }
+
+    private static void append(CorpusWriteAheadLog log, CorpusWriteAheadLog.Record record) throws IOException {
+        CorpusWriteAheadLog.await(log.append(record));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
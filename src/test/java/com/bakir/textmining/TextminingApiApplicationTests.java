@@ -3,10 +3,22 @@ package com.bakir.textmining;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
 //@Disabled
 @SpringBootTest
 class TextminingApiApplicationTests {
 
+	// Keep the write-ahead log out of the working tree
+	@DynamicPropertySource
+	static void writeAheadLogDirectory(DynamicPropertyRegistry registry) throws IOException {
+		String directory = Files.createTempDirectory("textmining-wal").toString();
+		registry.add("corpus.wal.directory", () -> directory);
+	}
+
 	@Test
 	void contextLoads() {
 	}
@@ -0,0 +1,165 @@
+package com.bakir.textmining.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mixed query / ingest load against the running application.
+ *
+ * Excluded from the default build; run with
+ * {@code mvn -Ploadtest test -Dloadtest.rate=200 -Dloadtest.duration-seconds=60}.
+ * Percentile distributions are written to target/loadtest/*.hgrm so runs
+ * before and after a change to CorpusService can be compared.
+ */
+@Tag("loadtest")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // Keep per-request INFO logging out of the measurements
+        properties = "logging.level.com.bakir.textmining=WARN")
+class CorpusLoadTest {
+
+    private static final long SEED = Long.getLong("loadtest.seed", 42L);
+    private static final int DOCUMENTS = Integer.getInteger("loadtest.documents", 2000);
+    private static final int VOCABULARY = Integer.getInteger("loadtest.vocabulary", 5000);
+    private static final double RATE = doubleProperty("loadtest.rate", 100);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 10);
+    // Threads completing responses; requests are dispatched asynchronously, not one per thread
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+    private static final double INGEST_RATIO = doubleProperty("loadtest.ingest-ratio", 0.1);
+    private static final double STATS_RATIO = doubleProperty("loadtest.stats-ratio", 0.05);
+    // Regression thresholds, disabled when 0
+    private static final double MAX_QUERY_P99_MS = doubleProperty("loadtest.max-query-p99-ms", 0);
+    private static final double MAX_INGEST_P99_MS = doubleProperty("loadtest.max-ingest-p99-ms", 0);
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void syntheticCorpus(DynamicPropertyRegistry registry) throws IOException {
+        Path workDir = Files.createTempDirectory("textmining-loadtest");
+        Path corpusDir = workDir.resolve("arabic");
+        new SyntheticCorpus(SEED, VOCABULARY).writeDocuments(corpusDir, DOCUMENTS);
+
+        registry.add("corpus.path", corpusDir::toString);
+        registry.add("corpus.wal.directory", () -> workDir.resolve("wal").toString());
+    }
+
+    @Test
+    void mixedQueryAndIngestWorkload() throws Exception {
+        SyntheticCorpus generator = new SyntheticCorpus(SEED + 1, VOCABULARY);
+        List<String> queries = generator.queries(1000);
+        List<String> documents = generator.documents(1000);
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(THREADS);
+        Map<String, LoadGenerator.Result> results;
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            LoadGenerator load = new LoadGenerator(client);
+
+            load.run(RATE, Duration.ofSeconds(WARMUP_SECONDS), workload(queries, documents, "warmup-"));
+            results = load.run(RATE, Duration.ofSeconds(DURATION_SECONDS), workload(queries, documents, "load-"));
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+
+        LoadGenerator.printSummary(System.out, RATE, results);
+        writeHistograms(results);
+
+        for (LoadGenerator.Result result : results.values()) {
+            assertThat(result.getErrors()).as("%s errors", result.getOperation()).isZero();
+        }
+        assertP99Within(results.get("query"), MAX_QUERY_P99_MS);
+        assertP99Within(results.get("ingest"), MAX_INGEST_P99_MS);
+    }
+
+    /**
+     * Pick each request's operation from its index, so that a given seed
+     * always produces the same request sequence
+     */
+    private LongFunction<LoadGenerator.Call> workload(List<String> queries, List<String> documents, String idPrefix) {
+        String base = "http://localhost:" + port;
+        return i -> {
+            SplittableRandom random = new SplittableRandom(SEED ^ i);
+            double pick = random.nextDouble();
+
+            if (pick < INGEST_RATIO) {
+                String docId = URLEncoder.encode(idPrefix + i, StandardCharsets.UTF_8);
+                return new LoadGenerator.Call("ingest", HttpRequest.newBuilder()
+                        .uri(URI.create(base + "/corpus/add?docId=" + docId))
+                        .header("Content-Type", "text/plain; charset=UTF-8")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                documents.get(random.nextInt(documents.size())), StandardCharsets.UTF_8))
+                        .build());
+            }
+            if (pick < INGEST_RATIO + STATS_RATIO) {
+                return new LoadGenerator.Call("stats", HttpRequest.newBuilder()
+                        .uri(URI.create(base + "/corpus/stats"))
+                        .GET()
+                        .build());
+            }
+            return new LoadGenerator.Call("query", HttpRequest.newBuilder()
+                    .uri(URI.create(base + "/text/mining"))
+                    .header("Content-Type", "text/plain; charset=UTF-8")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            queries.get(random.nextInt(queries.size())), StandardCharsets.UTF_8))
+                    .build());
+        };
+    }
+
+    private static void writeHistograms(Map<String, LoadGenerator.Result> results) throws IOException {
+        Path outputDir = Paths.get("target", "loadtest");
+        Files.createDirectories(outputDir);
+        for (LoadGenerator.Result result : results.values()) {
+            // Values are recorded in microseconds; scale the output to milliseconds
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(outputDir.resolve(result.getOperation() + ".hgrm")))) {
+                result.getLatency().outputPercentileDistribution(out, 1000.0);
+            }
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(outputDir.resolve(result.getOperation() + "-service.hgrm")))) {
+                result.getServiceTime().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static void assertP99Within(LoadGenerator.Result result, double maxMillis) {
+        if (result == null || maxMillis <= 0) {
+            return;
+        }
+        double p99 = result.getLatency().getValueAtPercentile(99) / 1000.0;
+        assertThat(p99).as("%s p99 latency (ms)", result.getOperation()).isLessThanOrEqualTo(maxMillis);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
@@ -0,0 +1,166 @@
+package com.bakir.textmining.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-loop HTTP load generator.
+ *
+ * Request i is sent asynchronously at start + i / rate whether or not
+ * earlier requests have completed, so the server sees the configured
+ * arrival rate however slow it gets. Latency is measured from that
+ * intended start, so any dispatch lag is counted instead of silently
+ * omitted (coordinated omission). Service time, measured from the actual
+ * send, is recorded alongside for comparison.
+ */
+final class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * One request of the workload, tagged with the operation it exercises
+     */
+    static final class Call {
+        private final String operation;
+        private final HttpRequest request;
+
+        Call(String operation, HttpRequest request) {
+            this.operation = operation;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Latency distributions of one operation, in microseconds
+     */
+    static final class Result {
+        private final String operation;
+        private final Histogram latency;
+        private final Histogram serviceTime;
+        private final long errors;
+        private final double seconds;
+
+        private Result(String operation, Histogram latency, Histogram serviceTime, long errors, double seconds) {
+            this.operation = operation;
+            this.latency = latency;
+            this.serviceTime = serviceTime;
+            this.errors = errors;
+            this.seconds = seconds;
+        }
+
+        String getOperation() { return operation; }
+        Histogram getLatency() { return latency; }
+        Histogram getServiceTime() { return serviceTime; }
+        long getErrors() { return errors; }
+        double getThroughput() { return latency.getTotalCount() / seconds; }
+    }
+
+    private static final class Recorders {
+        private final Recorder latency = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    private final HttpClient client;
+
+    LoadGenerator(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Issue requests at a fixed arrival rate for the given duration
+     *
+     * @return results per operation, sorted by name
+     */
+    Map<String, Result> run(double ratePerSecond, Duration duration, LongFunction<Call> workload)
+            throws InterruptedException {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long totalRequests = (long) (ratePerSecond * duration.toMillis() / 1000.0);
+        Map<String, Recorders> recorders = new ConcurrentHashMap<>();
+        CountDownLatch outstanding = new CountDownLatch((int) totalRequests);
+
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        for (long i = 0; i < totalRequests; i++) {
+            long intended = start + i * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            Call call = workload.apply(i);
+            Recorders recorder = recorders.computeIfAbsent(call.operation, op -> new Recorders());
+            long sent = System.nanoTime();
+            client.sendAsync(call.request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long done = System.nanoTime();
+                        recorder.latency.recordValue(toMicros(done - intended));
+                        recorder.serviceTime.recordValue(toMicros(done - sent));
+                        if (error != null || response.statusCode() / 100 != 2) {
+                            recorder.errors.incrementAndGet();
+                        }
+                        outstanding.countDown();
+                    });
+        }
+
+        if (!outstanding.await(TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(outstanding.getCount()
+                    + " requests still outstanding 5 minutes after the schedule ended");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Result> results = new TreeMap<>();
+        recorders.forEach((operation, recorder) -> results.put(operation, new Result(operation,
+                recorder.latency.getIntervalHistogram(),
+                recorder.serviceTime.getIntervalHistogram(),
+                recorder.errors.get(),
+                seconds)));
+        return results;
+    }
+
+    /**
+     * Print a one-line summary per operation, in milliseconds
+     */
+    static void printSummary(PrintStream out, double ratePerSecond, Map<String, Result> results) {
+        out.printf("%n%-8s %8s %7s %9s %9s %9s %9s %9s %9s %12s%n",
+                "op", "count", "errors", "req/s", "p50", "p90", "p99", "p99.9", "max", "svc p99");
+        for (Result result : results.values()) {
+            Histogram latency = result.latency;
+            out.printf("%-8s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n",
+                    result.operation,
+                    latency.getTotalCount(),
+                    result.errors,
+                    result.getThroughput(),
+                    millis(latency.getValueAtPercentile(50)),
+                    millis(latency.getValueAtPercentile(90)),
+                    millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)),
+                    millis(latency.getMaxValue()),
+                    millis(result.serviceTime.getValueAtPercentile(99)));
+        }
+        out.printf("target rate %.1f req/s; latencies in ms from intended start, svc = from actual send%n",
+                ratePerSecond);
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
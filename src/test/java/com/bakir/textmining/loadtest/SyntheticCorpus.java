@@ -0,0 +1,83 @@
+package com.bakir.textmining.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of Arabic-looking documents and queries.
+ * Words are drawn from a fixed vocabulary with a skewed distribution so
+ * that a few terms are frequent and most are rare, as in real text.
+ */
+final class SyntheticCorpus {
+
+    private static final String LETTERS = "ابتثجحخدذرزسشصضطظعغفقكلمنهوي";
+
+    private final Random random;
+    private final String[] vocabulary;
+
+    SyntheticCorpus(long seed, int vocabularySize) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = randomWord();
+        }
+    }
+
+    /**
+     * Write {@code count} documents as .txt files into {@code directory}
+     */
+    void writeDocuments(Path directory, int count) throws IOException {
+        Files.createDirectories(directory);
+        for (int i = 0; i < count; i++) {
+            Path file = directory.resolve(String.format("doc-%06d.txt", i));
+            Files.writeString(file, document(), StandardCharsets.UTF_8);
+        }
+    }
+
+    List<String> documents(int count) {
+        List<String> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(document());
+        }
+        return documents;
+    }
+
+    List<String> queries(int count) {
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(text(3 + random.nextInt(10)));
+        }
+        return queries;
+    }
+
+    private String document() {
+        return text(50 + random.nextInt(250));
+    }
+
+    private String text(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(i % 15 == 0 ? ".\n" : " ");
+            }
+            // Cubing a uniform value skews picks towards the start of the vocabulary
+            double skewed = Math.pow(random.nextDouble(), 3);
+            text.append(vocabulary[(int) (skewed * vocabulary.length)]);
+        }
+        return text.toString();
+    }
+
+    private String randomWord() {
+        int length = 3 + random.nextInt(5);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+}